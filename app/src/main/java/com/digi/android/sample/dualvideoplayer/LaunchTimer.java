@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2014-2016, Digi International Inc. <support@digi.com>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.digi.android.sample.dualvideoplayer;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Records the duration of the application launch phases.
+ *
+ * <p>Times are measured from the start of the process, and the report is
+ * written to the log with the application version so that cold start times
+ * can be compared between releases. Only the first launch of the process,
+ * the cold start, is reported; later launches in the same process are
+ * ignored.</p>
+ */
+public class LaunchTimer {
+
+	private static final String TAG = "LaunchTimer";
+
+	// Constants.
+	private static final int MAX_PHASES = 8;
+
+	// Variables.
+	private final long processStart = Process.getStartUptimeMillis();
+
+	private final String[] phases = new String[MAX_PHASES];
+	private final long[] times = new long[MAX_PHASES];
+	private int count;
+
+	// Whether a launch was already reported in this process.
+	private static boolean reported;
+
+	/**
+	 * Records that the given launch phase has just finished.
+	 *
+	 * @param phase Name of the phase.
+	 */
+	public void mark(String phase) {
+		if (reported || count == MAX_PHASES)
+			return;
+		phases[count] = phase;
+		times[count] = SystemClock.uptimeMillis();
+		count++;
+	}
+
+	/**
+	 * Returns whether a launch has already been reported in this process.
+	 *
+	 * @return {@code true} if {@link #report(String)} was called.
+	 */
+	public boolean isReported() {
+		return reported;
+	}
+
+	/**
+	 * Writes the recorded phases to the log. Only the first call in the
+	 * process has effect.
+	 *
+	 * @param version Version of the application being launched.
+	 */
+	public void report(String version) {
+		if (reported)
+			return;
+		reported = true;
+		StringBuilder builder = new StringBuilder("Launch of version ").append(version).append(':');
+		long previous = processStart;
+		for (int i = 0; i < count; i++) {
+			builder.append(' ').append(phases[i]).append('=').append(times[i] - previous).append("ms");
+			previous = times[i];
+		}
+		builder.append(", total=").append(previous - processStart).append("ms");
+		Log.i(TAG, builder.toString());
+	}
+}
@@ -0,0 +1,387 @@
+/**
+ * Copyright (c) 2014-2016, Digi International Inc. <support@digi.com>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.digi.android.sample.dualvideoplayer;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Compact list of video files.
+ *
+ * <p>Directory prefixes are interned and shared by all the entries living in
+ * the same folder, file names are packed in a single char arena addressed by
+ * int offsets and the per-file metadata (size and modification time) is
+ * cached in primitive arrays, so a large playlist costs a handful of arrays
+ * instead of one {@code String} and one {@code File} per item.</p>
+ *
+ * <p>The metadata is read from the file system the first time it is asked
+ * for, so adding entries never touches the disk.</p>
+ */
+public class Playlist {
+
+	// Constants.
+	private static final long UNKNOWN = -1;
+
+	private static final int INITIAL_CAPACITY = 16;
+	private static final int INITIAL_ARENA_SIZE = 512;
+
+	// Variables.
+
+	// Interned directory prefixes, without trailing separator.
+	private String[] dirs = new String[4];
+	private final HashMap<String, Integer> dirIndexes = new HashMap<String, Integer>();
+	private int dirCount;
+
+	// Packed file names. Name i lives in [nameOffsets[i], nameOffsets[i + 1]).
+	private char[] names = new char[INITIAL_ARENA_SIZE];
+	private int[] nameOffsets = new int[INITIAL_CAPACITY + 1];
+
+	// Per entry data.
+	private int[] dirOfEntry = new int[INITIAL_CAPACITY];
+	private long[] sizes = new long[INITIAL_CAPACITY];
+	private long[] mtimes = new long[INITIAL_CAPACITY];
+	private int count;
+
+	// Last path handed out by getPath().
+	private int cachedPathIndex = -1;
+	private String cachedPath;
+
+	/**
+	 * Returns the number of entries in the playlist.
+	 *
+	 * @return The number of entries.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Returns whether the playlist has no entries.
+	 *
+	 * @return {@code true} if the playlist is empty, {@code false} otherwise.
+	 */
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	/**
+	 * Removes all the entries from the playlist.
+	 *
+	 * <p>A fresh name arena is allocated so that text previously bound with
+	 * {@link #getNameArray()} keeps its content until views are rebound.</p>
+	 */
+	public void clear() {
+		count = 0;
+		dirCount = 0;
+		dirIndexes.clear();
+		Arrays.fill(dirs, null);
+		names = new char[names.length];
+		cachedPathIndex = -1;
+		cachedPath = null;
+	}
+
+	/**
+	 * Appends the given video file to the playlist.
+	 *
+	 * @param directory Directory containing the video file.
+	 * @param name File name of the video.
+	 */
+	public void add(String directory, String name) {
+		ensureCapacity(count + 1);
+		int start = nameOffsets[count];
+		int end = start + name.length();
+		if (end > names.length)
+			names = Arrays.copyOf(names, Math.max(end, names.length * 2));
+		name.getChars(0, name.length(), names, start);
+
+		dirOfEntry[count] = internDir(directory);
+		nameOffsets[count + 1] = end;
+		sizes[count] = UNKNOWN;
+		mtimes[count] = UNKNOWN;
+		count++;
+	}
+
+	/**
+	 * Returns the backing array holding all the packed file names. Use it
+	 * together with {@link #getNameOffset(int)} and {@link #getNameLength(int)}
+	 * to read a name without allocating.
+	 *
+	 * @return The name arena.
+	 */
+	public char[] getNameArray() {
+		return names;
+	}
+
+	/**
+	 * Returns the offset of the given entry name within the name arena.
+	 *
+	 * @param index Index of the entry.
+	 * @return The name offset.
+	 */
+	public int getNameOffset(int index) {
+		checkIndex(index);
+		return nameOffsets[index];
+	}
+
+	/**
+	 * Returns the length of the given entry name.
+	 *
+	 * @param index Index of the entry.
+	 * @return The name length.
+	 */
+	public int getNameLength(int index) {
+		checkIndex(index);
+		return nameOffsets[index + 1] - nameOffsets[index];
+	}
+
+	/**
+	 * Returns the file name of the given entry.
+	 *
+	 * @param index Index of the entry.
+	 * @return The file name.
+	 */
+	public String getName(int index) {
+		return new String(names, getNameOffset(index), getNameLength(index));
+	}
+
+	/**
+	 * Returns the full path of the given entry. The last returned path is
+	 * cached, so asking repeatedly for the same entry does not allocate.
+	 *
+	 * @param index Index of the entry.
+	 * @return The full path of the video file.
+	 */
+	public String getPath(int index) {
+		checkIndex(index);
+		if (index != cachedPathIndex) {
+			cachedPath = appendPath(index, new StringBuilder()).toString();
+			cachedPathIndex = index;
+		}
+		return cachedPath;
+	}
+
+	/**
+	 * Appends the full path of the given entry to the given builder.
+	 *
+	 * @param index Index of the entry.
+	 * @param builder Builder to append the path to.
+	 * @return The given builder.
+	 */
+	public StringBuilder appendPath(int index, StringBuilder builder) {
+		checkIndex(index);
+		String dir = dirs[dirOfEntry[index]];
+		if (dir != null) {
+			builder.append(dir);
+			if (!dir.endsWith(File.separator))
+				builder.append(File.separatorChar);
+		}
+		return builder.append(names, nameOffsets[index], nameOffsets[index + 1] - nameOffsets[index]);
+	}
+
+	/**
+	 * Returns the index of the entry with the given full path.
+	 *
+	 * @param path Full path of the video file.
+	 * @return The index of the entry, or -1 if it is not in the playlist.
+	 */
+	public int indexOf(String path) {
+		for (int i = 0; i < count; i++) {
+			String dir = dirs[dirOfEntry[i]];
+			int nameStart = 0;
+			if (dir != null) {
+				if (!path.startsWith(dir))
+					continue;
+				nameStart = dir.length();
+				if (!dir.endsWith(File.separator)) {
+					if (path.length() <= nameStart || path.charAt(nameStart) != File.separatorChar)
+						continue;
+					nameStart++;
+				}
+			}
+			int offset = nameOffsets[i];
+			int length = nameOffsets[i + 1] - offset;
+			if (path.length() - nameStart != length)
+				continue;
+			int j = 0;
+			while (j < length && path.charAt(nameStart + j) == names[offset + j])
+				j++;
+			if (j == length)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the size in bytes of the given entry.
+	 *
+	 * @param index Index of the entry.
+	 * @return The file size.
+	 */
+	public long getSize(int index) {
+		checkIndex(index);
+		loadMetadata(index);
+		return sizes[index];
+	}
+
+	/**
+	 * Returns the last modification time of the given entry.
+	 *
+	 * @param index Index of the entry.
+	 * @return The modification time in milliseconds since the epoch.
+	 */
+	public long getLastModified(int index) {
+		checkIndex(index);
+		loadMetadata(index);
+		return mtimes[index];
+	}
+
+	/**
+	 * Reads the size and modification time of the given entry if they are
+	 * not cached yet.
+	 */
+	private void loadMetadata(int index) {
+		if (mtimes[index] != UNKNOWN)
+			return;
+		File file = new File(getPath(index));
+		sizes[index] = file.length();
+		mtimes[index] = file.lastModified();
+	}
+
+	/**
+	 * Sorts the entries by directory and then by file name, using the same
+	 * ordering as {@link String#compareTo(String)}.
+	 */
+	public void sort() {
+		if (count < 2)
+			return;
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++)
+			order[i] = i;
+		int[] scratch = new int[count];
+		mergeSort(order, scratch, 0, count);
+
+		char[] sortedNames = new char[names.length];
+		int[] sortedOffsets = new int[nameOffsets.length];
+		int[] sortedDirs = new int[dirOfEntry.length];
+		long[] sortedSizes = new long[sizes.length];
+		long[] sortedMtimes = new long[mtimes.length];
+		int offset = 0;
+		for (int i = 0; i < count; i++) {
+			int from = order[i];
+			int length = nameOffsets[from + 1] - nameOffsets[from];
+			System.arraycopy(names, nameOffsets[from], sortedNames, offset, length);
+			sortedOffsets[i] = offset;
+			offset += length;
+			sortedDirs[i] = dirOfEntry[from];
+			sortedSizes[i] = sizes[from];
+			sortedMtimes[i] = mtimes[from];
+		}
+		sortedOffsets[count] = offset;
+
+		names = sortedNames;
+		nameOffsets = sortedOffsets;
+		dirOfEntry = sortedDirs;
+		sizes = sortedSizes;
+		mtimes = sortedMtimes;
+		cachedPathIndex = -1;
+		cachedPath = null;
+	}
+
+	/**
+	 * Stable merge sort of the given entry indexes in the range [from, to).
+	 */
+	private void mergeSort(int[] order, int[] scratch, int from, int to) {
+		if (to - from < 2)
+			return;
+		int mid = (from + to) >>> 1;
+		mergeSort(order, scratch, from, mid);
+		mergeSort(order, scratch, mid, to);
+		int i = from, j = mid, k = from;
+		while (i < mid && j < to)
+			scratch[k++] = compare(order[j], order[i]) < 0 ? order[j++] : order[i++];
+		while (i < mid)
+			scratch[k++] = order[i++];
+		while (j < to)
+			scratch[k++] = order[j++];
+		System.arraycopy(scratch, from, order, from, to - from);
+	}
+
+	/**
+	 * Compares two entries by directory and then by file name.
+	 */
+	private int compare(int a, int b) {
+		if (dirOfEntry[a] != dirOfEntry[b]) {
+			String dirA = dirs[dirOfEntry[a]];
+			String dirB = dirs[dirOfEntry[b]];
+			if (dirA == null)
+				return -1;
+			if (dirB == null)
+				return 1;
+			int result = dirA.compareTo(dirB);
+			if (result != 0)
+				return result;
+		}
+		int offsetA = nameOffsets[a];
+		int offsetB = nameOffsets[b];
+		int lengthA = nameOffsets[a + 1] - offsetA;
+		int lengthB = nameOffsets[b + 1] - offsetB;
+		int length = Math.min(lengthA, lengthB);
+		for (int i = 0; i < length; i++) {
+			char charA = names[offsetA + i];
+			char charB = names[offsetB + i];
+			if (charA != charB)
+				return charA - charB;
+		}
+		return lengthA - lengthB;
+	}
+
+	/**
+	 * Returns the index of the given directory, adding it if it is new.
+	 */
+	private int internDir(String dir) {
+		Integer index = dirIndexes.get(dir);
+		if (index != null)
+			return index;
+		if (dirCount == dirs.length)
+			dirs = Arrays.copyOf(dirs, dirs.length * 2);
+		dirs[dirCount] = dir;
+		dirIndexes.put(dir, dirCount);
+		return dirCount++;
+	}
+
+	/**
+	 * Grows the per entry arrays so they can hold the given number of entries.
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity <= dirOfEntry.length)
+			return;
+		int newCapacity = Math.max(capacity, dirOfEntry.length * 2);
+		nameOffsets = Arrays.copyOf(nameOffsets, newCapacity + 1);
+		dirOfEntry = Arrays.copyOf(dirOfEntry, newCapacity);
+		sizes = Arrays.copyOf(sizes, newCapacity);
+		mtimes = Arrays.copyOf(mtimes, newCapacity);
+	}
+
+	/**
+	 * Checks that the given index is within the playlist bounds.
+	 */
+	private void checkIndex(int index) {
+		if (index < 0 || index >= count)
+			throw new IndexOutOfBoundsException("Invalid index " + index + ", size is " + count);
+	}
+}
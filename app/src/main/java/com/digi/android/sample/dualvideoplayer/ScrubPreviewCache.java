@@ -0,0 +1,357 @@
+/**
+ * Copyright (c) 2014-2016, Digi International Inc. <support@digi.com>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.digi.android.sample.dualvideoplayer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.media.MediaMetadataRetriever;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Disk cache of scrubbing previews.
+ *
+ * <p>For every clip a strip of keyframe thumbnails taken at fixed intervals
+ * is generated in the background and stored on disk as a single JPEG sprite.
+ * While the seek bar is dragged, the thumbnail closest to the target position
+ * is decoded straight from the sprite, so no decoder seek is needed to show
+ * where the video will land.</p>
+ */
+public class ScrubPreviewCache {
+
+	private static final String TAG = "ScrubPreviewCache";
+
+	// Constants.
+	public static final int THUMB_WIDTH = 160;
+	public static final int THUMB_HEIGHT = 90;
+
+	private static final int COLUMNS = 10;
+	private static final int MIN_INTERVAL_MS = 5000;
+	private static final int MAX_FRAMES = 100;
+	private static final int MAX_SPRITES = 200;
+	private static final int JPEG_QUALITY = 70;
+
+	private static final String SPRITE_EXTENSION = ".jpg";
+	private static final String TEMP_EXTENSION = ".tmp";
+
+	// Variables.
+
+	// Directory where the sprites are stored.
+	private final File cacheDir;
+
+	// Background thread that generates the sprites. It runs at background
+	// priority so it does not compete with the playback decoder.
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			return new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+					runnable.run();
+				}
+			}, TAG);
+		}
+	});
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+	// Pending or running sprite generation.
+	private Future<?> pendingTask;
+	// Incremented every time a new clip is requested to abort stale work.
+	private volatile int generation;
+
+	// Clip requested last and its loaded strip, only accessed from the UI thread.
+	private String requestedPath;
+	private Strip strip;
+
+	private final Rect region = new Rect();
+	private final BitmapFactory.Options decodeOptions = new BitmapFactory.Options();
+
+	/**
+	 * Class constructor. Instantiates a new {@code ScrubPreviewCache} object
+	 * with the given parameters.
+	 *
+	 * @param cacheDir Directory where the preview sprites are stored.
+	 */
+	public ScrubPreviewCache(File cacheDir) {
+		this.cacheDir = cacheDir;
+		decodeOptions.inPreferredConfig = Bitmap.Config.RGB_565;
+		decodeOptions.inMutable = true;
+	}
+
+	/**
+	 * Makes the previews of the given clip available, generating them in the
+	 * background if they are not cached yet. Must be called from the UI thread.
+	 *
+	 * @param videoPath Path of the video clip.
+	 * @param size Size of the video file in bytes.
+	 * @param lastModified Modification time of the video file.
+	 */
+	public void load(final String videoPath, final long size, final long lastModified) {
+		if (videoPath == null || videoPath.equals(requestedPath))
+			return;
+		requestedPath = videoPath;
+		releaseStrip();
+		if (pendingTask != null)
+			pendingTask.cancel(false);
+		final int taskGeneration = ++generation;
+		pendingTask = executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				final Strip loaded = openStrip(videoPath, size, lastModified, taskGeneration);
+				if (loaded == null)
+					return;
+				mainHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						if (taskGeneration == generation && strip == null)
+							strip = loaded;
+						else
+							loaded.decoder.recycle();
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Decodes the preview of the given clip closest to the given position.
+	 * Must be called from the UI thread.
+	 *
+	 * @param videoPath Path of the video clip.
+	 * @param positionMs Position in milliseconds.
+	 * @param reuse Bitmap to decode into, or {@code null} to allocate one. It
+	 *              must be a mutable {@link #THUMB_WIDTH} x
+	 *              {@link #THUMB_HEIGHT} bitmap.
+	 * @return The preview bitmap, or {@code null} if it is not available yet.
+	 */
+	public Bitmap getFrame(String videoPath, int positionMs, Bitmap reuse) {
+		if (strip == null || !strip.path.equals(videoPath))
+			return null;
+		int index = Math.max(0, Math.min(strip.count - 1,
+				(positionMs + strip.intervalMs / 2) / strip.intervalMs));
+		int left = (index % COLUMNS) * THUMB_WIDTH;
+		int top = (index / COLUMNS) * THUMB_HEIGHT;
+		region.set(left, top, left + THUMB_WIDTH, top + THUMB_HEIGHT);
+		decodeOptions.inBitmap = reuse;
+		try {
+			return strip.decoder.decodeRegion(region, decodeOptions);
+		} catch (IllegalArgumentException e) {
+			Log.w(TAG, "Could not decode preview " + index + " of " + videoPath, e);
+			return null;
+		} finally {
+			decodeOptions.inBitmap = null;
+		}
+	}
+
+	/**
+	 * Stops the background generation and releases the loaded strip. Must be
+	 * called from the UI thread.
+	 */
+	public void shutdown() {
+		generation++;
+		requestedPath = null;
+		releaseStrip();
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Releases the strip currently loaded, if any.
+	 */
+	private void releaseStrip() {
+		if (strip != null) {
+			strip.decoder.recycle();
+			strip = null;
+		}
+	}
+
+	/**
+	 * Opens the sprite of the given clip, generating it first if needed.
+	 * Runs in the background thread.
+	 */
+	private Strip openStrip(String videoPath, long size, long lastModified, int taskGeneration) {
+		final String prefix = digest(videoPath) + "-";
+		final String key = prefix + Long.toHexString(size) + "-"
+				+ Long.toHexString(lastModified) + "-";
+
+		if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+			Log.e(TAG, "Could not create cache directory " + cacheDir);
+			return null;
+		}
+
+		File[] cached = cacheDir.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith(key) && name.endsWith(SPRITE_EXTENSION);
+			}
+		});
+		File sprite = cached != null && cached.length > 0 ? cached[0] : null;
+		if (sprite == null) {
+			// Drop sprites of older versions of the same clip.
+			File[] stale = cacheDir.listFiles(new FilenameFilter() {
+				@Override
+				public boolean accept(File dir, String name) {
+					return name.startsWith(prefix);
+				}
+			});
+			if (stale != null) {
+				for (File file : stale)
+					file.delete();
+			}
+			sprite = generateSprite(videoPath, key, taskGeneration);
+			if (sprite == null)
+				return null;
+			trimCache();
+		}
+
+		// File name is <key><interval>-<count>.jpg
+		String[] fields = sprite.getName()
+				.substring(key.length(), sprite.getName().length() - SPRITE_EXTENSION.length())
+				.split("-");
+		try {
+			Strip loaded = new Strip();
+			loaded.path = videoPath;
+			loaded.intervalMs = Integer.parseInt(fields[0]);
+			loaded.count = Integer.parseInt(fields[1]);
+			loaded.decoder = BitmapRegionDecoder.newInstance(sprite.getPath(), false);
+			return loaded;
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException | IOException e) {
+			Log.w(TAG, "Discarding invalid preview sprite " + sprite, e);
+			sprite.delete();
+			return null;
+		}
+	}
+
+	/**
+	 * Extracts the keyframe thumbnails of the given clip and writes them to
+	 * a new sprite. Runs in the background thread.
+	 */
+	private File generateSprite(String videoPath, String key, int taskGeneration) {
+		MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+		Bitmap sprite = null;
+		File temp = new File(cacheDir, key + TEMP_EXTENSION);
+		try {
+			retriever.setDataSource(videoPath);
+			String durationValue = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+			if (durationValue == null)
+				return null;
+			int duration = Integer.parseInt(durationValue);
+			int interval = Math.max(MIN_INTERVAL_MS, (duration + MAX_FRAMES - 1) / MAX_FRAMES);
+			int count = duration / interval + 1;
+
+			sprite = Bitmap.createBitmap(Math.min(count, COLUMNS) * THUMB_WIDTH,
+					((count + COLUMNS - 1) / COLUMNS) * THUMB_HEIGHT, Bitmap.Config.RGB_565);
+			Canvas canvas = new Canvas(sprite);
+			Rect cell = new Rect();
+			for (int i = 0; i < count; i++) {
+				if (taskGeneration != generation)
+					return null;
+				Bitmap frame = retriever.getScaledFrameAtTime(i * interval * 1000L,
+						MediaMetadataRetriever.OPTION_CLOSEST_SYNC, THUMB_WIDTH, THUMB_HEIGHT);
+				if (frame == null)
+					continue;
+				// Center the frame in its cell, keeping its aspect ratio.
+				int left = (i % COLUMNS) * THUMB_WIDTH + (THUMB_WIDTH - frame.getWidth()) / 2;
+				int top = (i / COLUMNS) * THUMB_HEIGHT + (THUMB_HEIGHT - frame.getHeight()) / 2;
+				cell.set(left, top, left + frame.getWidth(), top + frame.getHeight());
+				canvas.drawBitmap(frame, null, cell, null);
+				frame.recycle();
+			}
+
+			FileOutputStream out = new FileOutputStream(temp);
+			try {
+				sprite.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+			} finally {
+				out.close();
+			}
+			File target = new File(cacheDir, key + interval + "-" + count + SPRITE_EXTENSION);
+			if (!temp.renameTo(target))
+				return null;
+			return target;
+		} catch (RuntimeException | IOException e) {
+			Log.w(TAG, "Could not generate previews for " + videoPath, e);
+			return null;
+		} finally {
+			retriever.release();
+			if (sprite != null)
+				sprite.recycle();
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Removes the least recently generated sprites when the cache holds more
+	 * than {@link #MAX_SPRITES}. Runs in the background thread.
+	 */
+	private void trimCache() {
+		File[] sprites = cacheDir.listFiles();
+		if (sprites == null || sprites.length <= MAX_SPRITES)
+			return;
+		Arrays.sort(sprites, new Comparator<File>() {
+			public int compare(File object1, File object2) {
+				return Long.compare(object1.lastModified(), object2.lastModified());
+			}
+		});
+		for (int i = 0; i < sprites.length - MAX_SPRITES; i++)
+			sprites[i].delete();
+	}
+
+	/**
+	 * Returns the hexadecimal SHA-1 digest of the given value, used to name
+	 * the sprites of a clip after its path.
+	 */
+	private static String digest(String value) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+			StringBuilder builder = new StringBuilder(hash.length * 2);
+			for (byte b : hash)
+				builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 not available", e);
+		}
+	}
+
+	/**
+	 * Loaded preview sprite of a clip.
+	 */
+	private static class Strip {
+		String path;
+		int intervalMs;
+		int count;
+		BitmapRegionDecoder decoder;
+	}
+}
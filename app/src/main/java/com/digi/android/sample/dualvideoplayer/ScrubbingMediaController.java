@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2014-2016, Digi International Inc. <support@digi.com>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.digi.android.sample.dualvideoplayer;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.MediaController;
+
+/**
+ * {@link MediaController} that tells the attached {@link ScrubbingVideoView}
+ * when the seek bar is being dragged.
+ *
+ * <p>The controller does not expose its seek bar events, so the seek bar is
+ * looked up by its platform id every time the controller is shown and a touch
+ * listener is attached to it. If the seek bar cannot be found, seeks are never
+ * deferred and the controller behaves as a plain {@link MediaController}.</p>
+ */
+public class ScrubbingMediaController extends MediaController {
+
+	// Constants.
+	private static final int SEEK_BAR_ID = Resources.getSystem()
+			.getIdentifier("mediacontroller_progress", "id", "android");
+
+	// Variables.
+	private MediaPlayerControl player;
+
+	// View being scrubbed, null when the seek bar is not touched.
+	private ScrubbingVideoView scrubbingView;
+
+	private final Runnable endScrubbing = new Runnable() {
+		@Override
+		public void run() {
+			if (scrubbingView != null) {
+				scrubbingView.setScrubbing(false);
+				scrubbingView = null;
+			}
+		}
+	};
+
+	private final OnTouchListener seekBarTouchListener = new OnTouchListener() {
+		@Override
+		public boolean onTouch(View v, MotionEvent event) {
+			switch (event.getActionMasked()) {
+				case MotionEvent.ACTION_DOWN:
+					removeCallbacks(endScrubbing);
+					endScrubbing.run();
+					if (player instanceof ScrubbingVideoView) {
+						scrubbingView = (ScrubbingVideoView)player;
+						scrubbingView.setScrubbing(true);
+					}
+					break;
+				case MotionEvent.ACTION_UP:
+				case MotionEvent.ACTION_CANCEL:
+					// Let the seek bar report the final position first.
+					post(endScrubbing);
+					break;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * Class constructor. Instantiates a new {@code ScrubbingMediaController}
+	 * object with the given parameters.
+	 *
+	 * @param context Android application context.
+	 */
+	public ScrubbingMediaController(Context context) {
+		super(context);
+	}
+
+	@Override
+	public void setMediaPlayer(MediaPlayerControl player) {
+		super.setMediaPlayer(player);
+		this.player = player;
+	}
+
+	@Override
+	public void show(int timeout) {
+		super.show(timeout);
+		// The controller views are rebuilt every time the anchor changes.
+		if (SEEK_BAR_ID != 0) {
+			View seekBar = findViewById(SEEK_BAR_ID);
+			if (seekBar != null)
+				seekBar.setOnTouchListener(seekBarTouchListener);
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2014-2016, Digi International Inc. <support@digi.com>
+ *
+ * Permission to use, copy, modify, and/or distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.digi.android.sample.dualvideoplayer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.AttributeSet;
+import android.view.View;
+import android.widget.ImageView;
+import android.widget.VideoView;
+
+/**
+ * {@link VideoView} that shows scrubbing previews while the
+ * {@link ScrubbingMediaController} seek bar is dragged.
+ *
+ * <p>While scrubbing, seeks are not sent to the decoder. Instead, the closest
+ * preview from the {@link ScrubPreviewCache} is displayed and only the
+ * position where the seek bar is released is really sought. Any other seek,
+ * including the ones of the rewind and fast forward buttons, is immediate.</p>
+ */
+public class ScrubbingVideoView extends VideoView {
+
+	// Variables.
+	private ImageView previewView;
+	private ScrubPreviewCache previewCache;
+	private Bitmap previewBitmap;
+
+	private String path;
+
+	// Whether the seek bar is being dragged.
+	private boolean scrubbing = false;
+	// Position of the seek waiting for the seek bar to be released, -1 if none.
+	private int pendingSeek = -1;
+
+	/**
+	 * Class constructor. Instantiates a new {@code ScrubbingVideoView}
+	 * object with the given parameters.
+	 *
+	 * @param context Android application context.
+	 * @param attrs Attributes of the XML tag inflating the view.
+	 */
+	public ScrubbingVideoView(Context context, AttributeSet attrs) {
+		super(context, attrs);
+	}
+
+	/**
+	 * Configures where the scrubbing previews come from and where they are
+	 * displayed.
+	 *
+	 * @param previewView View that displays the previews.
+	 * @param previewCache Cache providing the previews.
+	 */
+	public void setScrubPreview(ImageView previewView, ScrubPreviewCache previewCache) {
+		this.previewView = previewView;
+		this.previewCache = previewCache;
+	}
+
+	/**
+	 * Sets whether the seek bar is being dragged. When scrubbing ends, the
+	 * last requested position is sought.
+	 *
+	 * @param scrubbing {@code true} if the seek bar is being dragged.
+	 */
+	public void setScrubbing(boolean scrubbing) {
+		this.scrubbing = scrubbing;
+		if (!scrubbing && pendingSeek >= 0) {
+			int position = pendingSeek;
+			cancelPendingSeek();
+			super.seekTo(position);
+		}
+	}
+
+	@Override
+	public void setVideoPath(String path) {
+		scrubbing = false;
+		cancelPendingSeek();
+		this.path = path;
+		super.setVideoPath(path);
+	}
+
+	@Override
+	public void stopPlayback() {
+		scrubbing = false;
+		cancelPendingSeek();
+		super.stopPlayback();
+	}
+
+	@Override
+	public void seekTo(int msec) {
+		if (!scrubbing) {
+			cancelPendingSeek();
+			super.seekTo(msec);
+			return;
+		}
+		pendingSeek = msec;
+		showPreview(msec);
+	}
+
+	@Override
+	public int getCurrentPosition() {
+		// Keep the seek bar where it was dropped until the real seek happens.
+		if (pendingSeek >= 0)
+			return pendingSeek;
+		return super.getCurrentPosition();
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		scrubbing = false;
+		cancelPendingSeek();
+		super.onDetachedFromWindow();
+	}
+
+	/**
+	 * Displays the preview closest to the given position, if available.
+	 */
+	private void showPreview(int msec) {
+		if (previewView == null || previewCache == null)
+			return;
+		Bitmap frame = previewCache.getFrame(path, msec, previewBitmap);
+		if (frame == null) {
+			previewView.setVisibility(View.INVISIBLE);
+			return;
+		}
+		if (frame != previewBitmap) {
+			previewBitmap = frame;
+			previewView.setImageBitmap(frame);
+		} else {
+			previewView.invalidate();
+		}
+		previewView.setVisibility(View.VISIBLE);
+	}
+
+	/**
+	 * Drops the seek waiting to be committed and hides the preview.
+	 */
+	private void cancelPendingSeek() {
+		pendingSeek = -1;
+		if (previewView != null)
+			previewView.setVisibility(View.INVISIBLE);
+	}
+}
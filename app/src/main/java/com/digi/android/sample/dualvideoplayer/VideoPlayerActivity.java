@@ -18,13 +18,16 @@ package com.digi.android.sample.dualvideoplayer;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import android.Manifest;
 import android.app.AlertDialog;
 import android.app.ListActivity;
 import android.content.Context;
 import android.content.DialogInterface;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.graphics.PixelFormat;
 import android.hardware.display.DisplayManager;
@@ -40,15 +43,16 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
+import android.widget.BaseAdapter;
 import android.widget.ImageButton;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.ListView;
 import android.widget.MediaController;
 import android.widget.TextView;
-import android.widget.VideoView;
 import android.widget.AdapterView.OnItemClickListener;
 
 /**
@@ -69,6 +73,19 @@ public class VideoPlayerActivity extends ListActivity implements OnCompletionLis
 	private static final int SCREEN_STATUS_FULL = 1;
 
 	private static final int CODE_FOR_READ_PERMISSION = 100;
+
+	private static final String SCRUB_CACHE_DIR = "scrub";
+
+	// Snapshot of the last scanned folder, used to render the lists at launch.
+	private static final String SNAPSHOT_PREFS = "folder_snapshot";
+	private static final String SNAPSHOT_FOLDER = "folder";
+	private static final String SNAPSHOT_FOLDERS = "folders";
+	private static final String SNAPSHOT_VIDEOS = "videos";
+	// File names cannot contain this character, so it separates the entries.
+	private static final char SNAPSHOT_SEPARATOR = '/';
+	// Maximum entries saved per list, enough to fill the screen at launch
+	// while keeping the snapshot small to read in onCreate().
+	private static final int SNAPSHOT_MAX_ENTRIES = 100;
 	
 	// Variables.
 
@@ -76,13 +93,13 @@ public class VideoPlayerActivity extends ListActivity implements OnCompletionLis
 	private TextView pathText;
 	
 	// VideoView where the video will be played.
-	private VideoView video;
-	private VideoView fullscreenVideo;
+	private ScrubbingVideoView video;
+	private ScrubbingVideoView fullscreenVideo;
 
 	private ImageButton normalscreenButton;
 
 	// List of video files contained in the selected path.
-	private ArrayList<String> videos;
+	private Playlist videos;
 	// List of folders.
 	private ArrayList<String> folders;
 	
@@ -106,6 +123,9 @@ public class VideoPlayerActivity extends ListActivity implements OnCompletionLis
 	// Object used to control video preview.
 	private MediaController ctlr;
 
+	// Cache of the previews shown while scrubbing.
+	private ScrubPreviewCache scrubPreviewCache;
+
 	// Current folder.
 	private File currentFolder;
 	
@@ -117,18 +137,33 @@ public class VideoPlayerActivity extends ListActivity implements OnCompletionLis
 	
 	private final Object videosLock = new Object();
 
+	// Launch phases timing.
+	private LaunchTimer launchTimer;
+	// Whether the work deferred after the first frame has been done.
+	private boolean startupComplete = false;
+	// Folder restored from the snapshot, null if there was none.
+	private File rememberedFolder;
+
+	// Background thread that lists the folders.
+	private final ExecutorService scanExecutor = Executors.newSingleThreadExecutor();
+	// Incremented on every scan so that only the last one is applied.
+	private int scanGeneration;
+
 	@Override
 	public void onCreate(Bundle savedInstanceState) {
+		launchTimer = new LaunchTimer();
 		super.onCreate(savedInstanceState);
 		getWindow().setFormat(PixelFormat.TRANSLUCENT);
 		setContentView(R.layout.main);
+		launchTimer.mark("content_view");
 
 		// Initialize variables.
 		folders = new ArrayList<String>();
-		videos = new ArrayList<String>();
-		videosAdapter = new VideoListAdapter(this, R.layout.video_item, this.videos);
+		videos = new Playlist();
+		videosAdapter = new VideoListAdapter(this.videos);
 		foldersAdapter = new FolderListAdapter(this, R.layout.explorer_item, folders);
-		ctlr = new MediaController(this);
+		ctlr = new ScrubbingMediaController(this);
+		scrubPreviewCache = new ScrubPreviewCache(new File(getCacheDir(), SCRUB_CACHE_DIR));
 		
 		// Find and instance UI components.
 		initializeUIElements();
@@ -143,16 +178,160 @@ public class VideoPlayerActivity extends ListActivity implements OnCompletionLis
 		ctlr.setMediaPlayer(video);
 		video.setMediaController(ctlr);
 		fullscreenVideo.setMediaController(ctlr);
-		pathText.setText(currentFolder.toString());
 		ctlr.setAnchorView(findViewById(R.id.video_container));
 		
 		// Get managers.
 		displayManager = (DisplayManager)getSystemService(Context.DISPLAY_SERVICE);
-		// Register for display events.
-		displayManager.registerDisplayListener(this, null);
+
+		// Show the last known folder list right away.
+		restoreSnapshot();
+		launchTimer.mark("snapshot");
+
+		// Enumerate displays and scan the folder once the first frame is drawn.
+		scheduleDeferredStartup();
+	}
+
+	/**
+	 * Schedules {@link #completeStartup()} to run right after the first frame
+	 * of the activity is drawn.
+	 */
+	private void scheduleDeferredStartup() {
+		final View decorView = getWindow().getDecorView();
+		decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+			@Override
+			public boolean onPreDraw() {
+				decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+				// Posted runnables are executed once the current frame is done.
+				decorView.post(new Runnable() {
+					@Override
+					public void run() {
+						launchTimer.mark("first_frame");
+						completeStartup();
+					}
+				});
+				return true;
+			}
+		});
+	}
+
+	/**
+	 * Performs the startup work that is not needed to draw the first frame:
+	 * enumerates the displays and starts scanning the current folder. The
+	 * launch is reported once the scan results are displayed.
+	 */
+	private void completeStartup() {
+		if (startupComplete || isDestroyed())
+			return;
+		startupComplete = true;
+
+		// Start secondary display video player.
+		startVideoPlayerPresentation();
+		launchTimer.mark("displays");
 
 		// Update folder list.
-		updateFolderList();
+		scanStartupFolder();
+	}
+
+	/**
+	 * Scans the folder remembered from the last run. If it is not available,
+	 * for example because its storage is not mounted yet, the storage root is
+	 * scanned instead and the remembered folder is kept for the next launch.
+	 */
+	private void scanStartupFolder() {
+		scanFolder(rememberedFolder != null ? rememberedFolder : currentFolder,
+				Environment.getExternalStorageDirectory());
+	}
+
+	@Override
+	public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
+		super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+		// The folders could not be listed without the permission, scan again.
+		if (requestCode == CODE_FOR_READ_PERMISSION && grantResults.length > 0
+				&& grantResults[0] == PackageManager.PERMISSION_GRANTED && startupComplete)
+			scanStartupFolder();
+	}
+
+	/**
+	 * Returns the version name of the application.
+	 *
+	 * @return The version name, or {@code null} if it cannot be read.
+	 */
+	private String getVersionName() {
+		try {
+			return getPackageManager().getPackageInfo(getPackageName(), 0).versionName;
+		} catch (PackageManager.NameNotFoundException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Fills the lists with the folder and video names saved by
+	 * {@link #saveSnapshot()} without accessing the file system.
+	 */
+	private void restoreSnapshot() {
+		SharedPreferences snapshot = getSharedPreferences(SNAPSHOT_PREFS, MODE_PRIVATE);
+		String folder = snapshot.getString(SNAPSHOT_FOLDER, null);
+		if (folder == null) {
+			pathText.setText(currentFolder.toString());
+			return;
+		}
+		rememberedFolder = new File(folder);
+		currentFolder = rememberedFolder;
+		pathText.setText(folder);
+
+		clearFolderList();
+		folders.addAll(splitSnapshotNames(snapshot.getString(SNAPSHOT_FOLDERS, "")));
+		foldersAdapter.notifyDataSetChanged();
+
+		videos.clear();
+		for (String name : splitSnapshotNames(snapshot.getString(SNAPSHOT_VIDEOS, "")))
+			videos.add(folder, name);
+		videosAdapter.notifyDataSetChanged();
+	}
+
+	/**
+	 * Splits a list of names saved by {@link #saveSnapshot()}.
+	 *
+	 * @param names Names separated by {@link #SNAPSHOT_SEPARATOR}.
+	 * @return The list of names.
+	 */
+	private static ArrayList<String> splitSnapshotNames(String names) {
+		ArrayList<String> result = new ArrayList<String>();
+		for (int start = 0, end; start < names.length(); start = end + 1) {
+			end = names.indexOf(SNAPSHOT_SEPARATOR, start);
+			if (end == -1)
+				end = names.length();
+			result.add(names.substring(start, end));
+		}
+		return result;
+	}
+
+	/**
+	 * Saves the current folder and the first names listed in it, so the next
+	 * launch can display them before scanning.
+	 */
+	private void saveSnapshot() {
+		StringBuilder folderNames = new StringBuilder();
+		// Skip the parent folder entry, it is added by clearFolderList().
+		int folderCount = Math.min(folders.size(), SNAPSHOT_MAX_ENTRIES + 1);
+		for (int i = 1; i < folderCount; i++) {
+			if (i > 1)
+				folderNames.append(SNAPSHOT_SEPARATOR);
+			folderNames.append(folders.get(i));
+		}
+		StringBuilder videoNames = new StringBuilder();
+		char[] nameArray = videos.getNameArray();
+		int videoCount = Math.min(videos.size(), SNAPSHOT_MAX_ENTRIES);
+		for (int i = 0; i < videoCount; i++) {
+			if (i > 0)
+				videoNames.append(SNAPSHOT_SEPARATOR);
+			videoNames.append(nameArray, videos.getNameOffset(i), videos.getNameLength(i));
+		}
+		getSharedPreferences(SNAPSHOT_PREFS, MODE_PRIVATE).edit()
+				.putString(SNAPSHOT_FOLDER, currentFolder.getPath())
+				.putString(SNAPSHOT_FOLDERS, folderNames.toString())
+				.putString(SNAPSHOT_VIDEOS, videoNames.toString())
+				.apply();
 	}
 
 	/**
@@ -189,49 +368,35 @@ public class VideoPlayerActivity extends ListActivity implements OnCompletionLis
 				handleNormalScreenButtonPressed();
 			}
 		});
-		video = (VideoView)this.findViewById(R.id.video_view);
+		video = (ScrubbingVideoView)this.findViewById(R.id.video_view);
 		video.setOnCompletionListener(this);
-		fullscreenVideo = (VideoView)this.findViewById(R.id.fullscreen_video_view);
+		video.setScrubPreview((ImageView)findViewById(R.id.scrub_preview), scrubPreviewCache);
+		fullscreenVideo = (ScrubbingVideoView)this.findViewById(R.id.fullscreen_video_view);
 		fullscreenVideo.setOnCompletionListener(this);
+		fullscreenVideo.setScrubPreview((ImageView)findViewById(R.id.fullscreen_scrub_preview), scrubPreviewCache);
 		folderListView = (ListView)findViewById(R.id.folder_list);
 		folderListView.setOnItemClickListener(new OnItemClickListener() {
 			@Override
 			public void onItemClick(AdapterView<?> arg0, View arg1, int arg2, long arg3) {
+				// Resolve the target against the folder on screen. The current
+				// folder only changes once the scan results are displayed.
+				File folder = currentFolder;
 				if (arg2 > 0)
-					currentFolder = new File(currentFolder, folders.get(arg2));
+					folder = new File(currentFolder, folders.get(arg2));
 				else {
 					if (currentFolder.getParentFile() != null)
-						currentFolder = currentFolder.getParentFile();
+						folder = currentFolder.getParentFile();
 				}
 				video.stopPlayback();
 				video.setEnabled(false);
 				selectedVideoIndex = -1;
-				updateFolderList();
+				scanFolder(folder, null);
 			}
 		});
 		videosListView = getListView();
 		blackBackground = (LinearLayout)findViewById(R.id.black_background);
 	}
 
-	/**
-	 * Fills the ListView with the video files in the selected folder.
-	 */
-	public void updateVideoList() {
-		clearVideoList();
-		if (currentFolder.exists() && currentFolder.listFiles() != null &&
-				currentFolder.listFiles(new VideoFilter()).length > 0) {
-			for (File file : currentFolder.listFiles(new VideoFilter()))
-				videos.add(file.getName());
-			videosAdapter.sort(new Comparator<String>() {
-				public int compare(String object1, String object2) {
-					return object1.compareTo(object2);
-				}
-			});
-			videosAdapter.notifyDataSetChanged();
-			onListItemClick(videosListView, null, 0, 0);
-		}
-	}
-
 	@Override
 	public void onDisplayAdded(int displayId) {
 		startVideoPlayerPresentation();
@@ -282,17 +447,19 @@ public class VideoPlayerActivity extends ListActivity implements OnCompletionLis
 			}, 100L);
 
 			selectedVideoIndex = position;
+			scrubPreviewCache.load(videos.getPath(position), videos.getSize(position),
+					videos.getLastModified(position));
 
 			switch (screenStatus) {
 				case SCREEN_STATUS_FULL:
 					fullscreenVideo.setEnabled(true);
-					fullscreenVideo.setVideoPath(new File(currentFolder, videos.get(position)).toString());
+					fullscreenVideo.setVideoPath(videos.getPath(position));
 					fullscreenVideo.requestFocus();
 					fullscreenVideo.start();
 					break;
 				case SCREEN_STATUS_NORMAL:
 					video.setEnabled(true);
-					video.setVideoPath(new File(currentFolder, videos.get(position)).toString());
+					video.setVideoPath(videos.getPath(position));
 					video.requestFocus();
 					video.start();
 					break;
@@ -318,8 +485,17 @@ public class VideoPlayerActivity extends ListActivity implements OnCompletionLis
 			video.start();
 		// Register for display change events.
 		displayManager.registerDisplayListener(this, null);
-		// Start secondary display video player.
-		startVideoPlayerPresentation();
+		// Start secondary display video player. On launch this is deferred
+		// until the first frame is drawn.
+		if (startupComplete)
+			startVideoPlayerPresentation();
+	}
+
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		scrubPreviewCache.shutdown();
+		scanExecutor.shutdownNow();
 	}
 	
 	/**
@@ -340,24 +516,89 @@ public class VideoPlayerActivity extends ListActivity implements OnCompletionLis
 	}
 	
 	/**
-	 * Fills the ListView with the folders within the current folder.
+	 * Lists the given folder in the background and displays its folders and
+	 * videos once done.
+	 *
+	 * @param folder Folder to scan.
+	 * @param fallback Folder to scan instead if {@code folder} does not
+	 *                 exist, or {@code null} to scan {@code folder} anyway.
 	 */
-	private void updateFolderList() {
-		clearFolderList();
-		pathText.setText(currentFolder.toString());
-		if (currentFolder.listFiles() != null) {
-			for (File file : currentFolder.listFiles()){
-				if (file.isDirectory())
-					folders.add(file.getName());
+	private void scanFolder(final File folder, final File fallback) {
+		pathText.setText(folder.toString());
+		final int scan = ++scanGeneration;
+		scanExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				final FolderScan result = listFolder(folder, fallback);
+				runOnUiThread(new Runnable() {
+					@Override
+					public void run() {
+						if (scan == scanGeneration && !isDestroyed())
+							applyFolderScan(result);
+					}
+				});
 			}
-			foldersAdapter.sort(new Comparator<String>() {
-				public int compare(String object1, String object2) {
-					return object1.compareTo(object2);
-				}
-			});
-			foldersAdapter.notifyDataSetChanged();
+		});
+	}
+
+	/**
+	 * Lists and sorts the folders and videos within the given folder. Runs
+	 * in the background thread.
+	 */
+	private static FolderScan listFolder(File folder, File fallback) {
+		FolderScan result = new FolderScan();
+		result.folder = folder;
+		if (fallback != null && !folder.isDirectory()) {
+			result.folder = fallback;
+			result.fallback = true;
+		}
+		File[] files = result.folder.listFiles();
+		if (files == null)
+			return result;
+
+		VideoFilter filter = new VideoFilter();
+		String directory = result.folder.getPath();
+		for (File file : files) {
+			if (file.isDirectory())
+				result.folders.add(file.getName());
+			else if (filter.accept(result.folder, file.getName()))
+				result.videos.add(directory, file.getName());
+		}
+		Collections.sort(result.folders);
+		result.videos.sort();
+		result.listed = true;
+		return result;
+	}
+
+	/**
+	 * Displays the result of a folder scan and starts playing its first video.
+	 */
+	private void applyFolderScan(FolderScan result) {
+		currentFolder = result.folder;
+		pathText.setText(currentFolder.toString());
+		clearFolderList();
+		folders.addAll(result.folders);
+		foldersAdapter.notifyDataSetChanged();
+		synchronized (videosLock) {
+			// Keep the clip the operator picked if it is still listed.
+			String selectedPath = selectedVideoIndex != -1 ? videos.getPath(selectedVideoIndex) : null;
+			videos = result.videos;
+			selectedVideoIndex = selectedPath != null ? videos.indexOf(selectedPath) : -1;
+			videosAdapter.setItems(videos);
+		}
+		// Otherwise play the first video, or stop playback if there is none.
+		if (selectedVideoIndex == -1)
+			onListItemClick(videosListView, null, 0, 0);
+
+		// Do not forget the remembered folder if it could not be listed.
+		if (result.listed && !result.fallback)
+			saveSnapshot();
+
+		if (!launchTimer.isReported()) {
+			launchTimer.mark("scan");
+			reportFullyDrawn();
+			launchTimer.report(getVersionName());
 		}
-		updateVideoList();
 	}
 	
 	/**
@@ -369,14 +610,6 @@ public class VideoPlayerActivity extends ListActivity implements OnCompletionLis
 		foldersAdapter.notifyDataSetChanged();
 	}
 	
-	/**
-	 * Clears the video list
-	 */
-	private void clearVideoList() {
-		videos.clear();
-		videosAdapter.notifyDataSetChanged();
-	}
-
 	/**
 	 * Handles what happens when the full screen button is pressed.
 	 */
@@ -407,7 +640,7 @@ public class VideoPlayerActivity extends ListActivity implements OnCompletionLis
 			fullscreenVideo.setVisibility(View.VISIBLE);
 			normalscreenButton.setVisibility(View.VISIBLE);
 			hideSystemUI();
-			fullscreenVideo.setVideoPath(new File(currentFolder, videos.get(selectedVideoIndex)).toString());
+			fullscreenVideo.setVideoPath(videos.getPath(selectedVideoIndex));
 			fullscreenVideo.start();
 			fullscreenVideo.seekTo(seek);
 			ctlr.setMediaPlayer(fullscreenVideo);
@@ -432,7 +665,7 @@ public class VideoPlayerActivity extends ListActivity implements OnCompletionLis
 			ctlr.setMediaPlayer(video);
 			ctlr.setAnchorView(findViewById(R.id.video_container));
 			video.setVisibility(View.VISIBLE);
-			video.setVideoPath(new File(currentFolder, videos.get(selectedVideoIndex)).toString());
+			video.setVideoPath(videos.getPath(selectedVideoIndex));
 			video.start();
 			video.seekTo(seek);
 			videosListView.setEnabled(true);
@@ -468,7 +701,7 @@ public class VideoPlayerActivity extends ListActivity implements OnCompletionLis
 						break;
 					default:
 						if (secondaryVideoPlayer != null)
-							secondaryVideoPlayer.playVideo(new File(currentFolder, videos.get(selectedVideoIndex)).toString());
+							secondaryVideoPlayer.playVideo(videos.getPath(selectedVideoIndex));
 						break;
 				}
 			}
@@ -502,33 +735,51 @@ public class VideoPlayerActivity extends ListActivity implements OnCompletionLis
 	}
 	
 	/**
-	 * Populates a ListView with the data contained in the given ArrayList 
+	 * Populates a ListView with the data contained in the given Playlist.
 	 */
-	class VideoListAdapter extends ArrayAdapter<String> {
-		private ArrayList<String> videoItems;
+	class VideoListAdapter extends BaseAdapter {
+		private Playlist videoItems;
 
 		/**
 		 * Class constructor. Instantiates a new {@code VideoListAdapter} object
 		 * with the given parameters.
 		 * 
-		 * @param context Android application context.
-		 * @param textViewResourceId Resource view used to display array item.
-		 * @param items List of items for the array adapter.
+		 * @param items Playlist with the items to display.
 		 */
-		VideoListAdapter(Context context, int textViewResourceId, ArrayList<String> items) {
-			super(context, textViewResourceId, items);
+		VideoListAdapter(Playlist items) {
+			videoItems = items;
+		}
+
+		/**
+		 * Replaces the playlist displayed by the adapter.
+		 *
+		 * @param items Playlist with the items to display.
+		 */
+		void setItems(Playlist items) {
 			videoItems = items;
+			notifyDataSetChanged();
+		}
+
+		@Override
+		public int getCount() {
+			return videoItems.size();
+		}
+
+		@Override
+		public Object getItem(int position) {
+			return videoItems.getName(position);
+		}
+
+		@Override
+		public long getItemId(int position) {
+			return position;
 		}
 
 		@Override
 		public View getView(int position, View convertView, ViewGroup parent){
 			View row = convertView;
 			LayoutInflater inflater = getLayoutInflater();
-			String listItem = videoItems.get(position);
-			String selectedItem = null;
-			if(selectedVideoIndex != -1)
-				selectedItem = videos.get(selectedVideoIndex);
-			if (listItem != null && selectedItem != null && listItem.equals(selectedItem)) {
+			if (position == selectedVideoIndex) {
 				if (row == null || row.getId() != R.layout.selected_video_item)
 					row = inflater.inflate(R.layout.selected_video_item, parent, false);
 			} else {
@@ -536,11 +787,26 @@ public class VideoPlayerActivity extends ListActivity implements OnCompletionLis
 					row = inflater.inflate(R.layout.video_item, parent, false);
 			}
 			TextView videoTitle = (TextView)row.findViewById(R.id.video_title);
-			videoTitle.setText(listItem);
+			videoTitle.setText(videoItems.getNameArray(), videoItems.getNameOffset(position),
+					videoItems.getNameLength(position));
 			return(row);
 		}
 	}
 	
+	/**
+	 * Result of listing a folder in the background.
+	 */
+	private static class FolderScan {
+		// Folder that was listed.
+		File folder;
+		// Whether the fallback folder was listed instead of the requested one.
+		boolean fallback;
+		// Whether the folder could be listed.
+		boolean listed;
+		final ArrayList<String> folders = new ArrayList<String>();
+		final Playlist videos = new Playlist();
+	}
+
 	/**
 	 * Populates a ListView with the data contained in the given ArrayList.
 	 */